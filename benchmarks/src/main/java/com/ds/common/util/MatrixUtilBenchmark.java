@@ -0,0 +1,57 @@
+package com.ds.common.util;
+
+import com.ds.common.exception.InvalidSquareMatrixException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Input parsing and the string codec used for every gRPC request and response
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class MatrixUtilBenchmark {
+
+    @Param({"64", "128", "256", "512", "1024", "2048"})
+    private int size;
+
+    private String matrixString;
+    private int[][] matrix;
+    private String encodedMatrix;
+
+    @Setup
+    public void setUp() throws InvalidSquareMatrixException {
+        matrixString = MatrixFixtures.generateMatrixString(size);
+        matrix = MatrixUtil.convertToSquareMatrix(matrixString);
+        encodedMatrix = MatrixUtil.encodeMatrix(matrix);
+    }
+
+    @Benchmark
+    public int[][] convertToSquareMatrix() throws InvalidSquareMatrixException {
+        return MatrixUtil.convertToSquareMatrix(matrixString);
+    }
+
+    @Benchmark
+    public String encodeMatrix() {
+        return MatrixUtil.encodeMatrix(matrix);
+    }
+
+    @Benchmark
+    public int[][] decodeMatrix() {
+        return MatrixUtil.decodeMatrix(encodedMatrix);
+    }
+}
@@ -0,0 +1,53 @@
+package com.ds.grpc.client;
+
+import com.ds.common.exception.InvalidSquareMatrixException;
+import com.ds.common.util.MatrixFixtures;
+import com.ds.common.util.MatrixUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splitting the inputs into blocks and joining the block results on the client
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BlockSplitBenchmark {
+
+    @Param({"64", "128", "256", "512", "1024", "2048"})
+    private int size;
+
+    private int[][] matrixA;
+    private int[][] matrixB;
+
+    @Setup
+    public void setUp() throws InvalidSquareMatrixException {
+        matrixA = MatrixUtil.convertToSquareMatrix(MatrixFixtures.generateMatrixString(size));
+        matrixB = MatrixUtil.convertToSquareMatrix(MatrixFixtures.generateMatrixString(size));
+    }
+
+    @Benchmark
+    public HashMap<String, int[][]> splitBlocks() {
+        return GRPCClientService.splitBlocks(matrixA, matrixB);
+    }
+
+    @Benchmark
+    public int[][] joinBlocks() {
+        return GRPCClientService.joinBlocks(matrixA, matrixB, matrixA, matrixB);
+    }
+}
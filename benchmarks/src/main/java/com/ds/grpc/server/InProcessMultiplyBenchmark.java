@@ -0,0 +1,100 @@
+package com.ds.grpc.server;
+
+import com.ds.common.exception.InvalidSquareMatrixException;
+import com.ds.common.exception.JobRejectedException;
+import com.ds.common.util.MatrixFixtures;
+import com.ds.grpc.client.GRPCClientService;
+import com.ds.grpc.client.JobAdmissionService;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole multiply job through GRPCClientService against 8 MatrixServiceGrpcImpl servers running in-process,
+ * covering the codec, the gRPC stack and the kernels without the network
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class InProcessMultiplyBenchmark {
+
+    // one per stub port of GRPCClientService
+    private static final int SERVERS = 8;
+    private static final int MAX_CONCURRENT_CALLS = 4;
+    private static final int MAX_WAITING_CALLS = 16;
+
+    // 1ns deadline makes the footprint scaling use all servers
+    private static final long DEADLINE = 1L;
+
+    @Param({"64", "128", "256", "512", "1024", "2048"})
+    private int size;
+
+    private Server[] servers;
+    private ManagedChannel[] channels;
+    private GRPCClientService clientService;
+    private String matrixString;
+
+    @Setup
+    public void setUp() throws IOException {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        servers = new Server[SERVERS];
+        channels = new ManagedChannel[SERVERS];
+        for (int i = 0; i < SERVERS; i++) {
+            String name = "matrix-server-" + (i + 1);
+            servers[i] = InProcessServerBuilder.forName(name)
+                    .addService(ServerInterceptors.intercept(
+                            new MatrixServiceGrpcImpl(i + 1, meterRegistry),
+                            new JobIdServerInterceptor(),
+                            new CallLimitServerInterceptor(i + 1, MAX_CONCURRENT_CALLS, MAX_WAITING_CALLS, meterRegistry)))
+                    .build()
+                    .start();
+            channels[i] = InProcessChannelBuilder.forName(name).build();
+        }
+
+        // budget large enough to admit a 2048 job
+        JobAdmissionService jobAdmissionService = new JobAdmissionService(meterRegistry, 1 << 20, 32, 16, 60000L);
+        jobAdmissionService.init();
+
+        clientService = new GRPCClientService(jobAdmissionService, meterRegistry);
+        clientService.init(channels);
+
+        matrixString = MatrixFixtures.generateMatrixString(size);
+    }
+
+    @TearDown
+    public void tearDown() {
+        clientService.destroy();
+        for (Server server : servers) {
+            server.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public String multiply() throws InvalidSquareMatrixException, JobRejectedException, ExecutionException, InterruptedException {
+        return clientService.multiplyMatrices(matrixString, matrixString, DEADLINE);
+    }
+}
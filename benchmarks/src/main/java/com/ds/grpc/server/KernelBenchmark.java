@@ -0,0 +1,52 @@
+package com.ds.grpc.server;
+
+import com.ds.common.exception.InvalidSquareMatrixException;
+import com.ds.common.util.MatrixFixtures;
+import com.ds.common.util.MatrixUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Block kernels run by the gRPC servers, on blocks of the size the client sends (n x n)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class KernelBenchmark {
+
+    @Param({"64", "128", "256", "512", "1024", "2048"})
+    private int size;
+
+    private int[][] matrixA;
+    private int[][] matrixB;
+
+    @Setup
+    public void setUp() throws InvalidSquareMatrixException {
+        matrixA = MatrixUtil.convertToSquareMatrix(MatrixFixtures.generateMatrixString(size));
+        matrixB = MatrixUtil.convertToSquareMatrix(MatrixFixtures.generateMatrixString(size));
+    }
+
+    @Benchmark
+    public int[][] addMatrices() {
+        return MatrixServiceGrpcImpl.addMatrices(matrixA, matrixB);
+    }
+
+    @Benchmark
+    public int[][] multiplyMatrices() {
+        return MatrixServiceGrpcImpl.multiplyMatrices(matrixA, matrixB);
+    }
+}
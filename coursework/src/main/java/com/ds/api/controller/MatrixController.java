@@ -2,6 +2,13 @@ package com.ds.api.controller;
 
 import com.ds.grpc.client.GRPCClientService;
 import com.ds.common.exception.InvalidSquareMatrixException;
+import com.ds.common.exception.JobRejectedException;
+import com.ds.common.metrics.MatrixMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -15,23 +22,56 @@ import java.util.concurrent.ExecutionException;
 @RestController
 public class MatrixController {
 
+	private static final Logger log = LoggerFactory.getLogger(MatrixController.class);
+
 	GRPCClientService grpcClientService;
+	MeterRegistry meterRegistry;
 
 	@Autowired
-	public MatrixController(GRPCClientService grpcClientService) {
+	public MatrixController(GRPCClientService grpcClientService, MeterRegistry meterRegistry) {
 		this.grpcClientService = grpcClientService;
+		this.meterRegistry = meterRegistry;
 	}
 
 
 	@PostMapping("/matrix-multiply")
-	public String matrixMultiply(@RequestParam("matrixFile1") MultipartFile matrixFile1, @RequestParam("matrixFile2") MultipartFile matrixFile2, @RequestParam("deadline") String deadline) {
+	public ResponseEntity<String> matrixMultiply(@RequestParam("matrixFile1") MultipartFile matrixFile1, @RequestParam("matrixFile2") MultipartFile matrixFile2, @RequestParam("deadline") String deadline) {
 	    try {
 			String matrix1String = new String(matrixFile1.getBytes(), StandardCharsets.UTF_8);
 			String matrix2String = new String(matrixFile2.getBytes(), StandardCharsets.UTF_8);
-			return grpcClientService.multiplyMatrices(matrix1String, matrix2String, Long.parseLong(deadline));
-	    } catch(IOException | InvalidSquareMatrixException | ExecutionException | InterruptedException e) {
-	    	e.printStackTrace();
-	    	return e.getLocalizedMessage();
+			return ResponseEntity.ok(grpcClientService.multiplyMatrices(matrix1String, matrix2String, Long.parseLong(deadline)));
+	    } catch(JobRejectedException e) {
+	    	HttpStatus status = rejectionStatus(e.getReason());
+	    	log.warn("Rejected multiply job with {}: {}", status.value(), e.getMessage());
+	    	meterRegistry.counter(MatrixMetrics.JOBS_REJECTED, "status", String.valueOf(status.value())).increment();
+	    	if (status == HttpStatus.PAYLOAD_TOO_LARGE) {
+	    		// the job will never fit, so there is no point in retrying
+	    		return ResponseEntity.status(status).body(e.getLocalizedMessage());
+	    	}
+	    	return ResponseEntity.status(status).header("Retry-After", "1").body(e.getLocalizedMessage());
+	    } catch(ExecutionException e) {
+	    	// a block call failed (e.g. servers still busy after retries), already logged with the job id by the client service
+	    	return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "1").body(e.getLocalizedMessage());
+	    } catch(IOException | InvalidSquareMatrixException | InterruptedException e) {
+	    	log.error("Matrix multiply failed", e);
+	    	return ResponseEntity.ok(e.getLocalizedMessage());
+		}
+	}
+
+	/***
+	 *  Maps why a job was turned away to the response status
+	 * @param reason
+	 * @return 429 if the queue is full so the caller backs off, 503 if the service is overloaded, 413 if the job can never fit
+	 */
+	private static HttpStatus rejectionStatus(JobRejectedException.Reason reason) {
+		switch (reason) {
+			case QUEUE_FULL:
+				return HttpStatus.TOO_MANY_REQUESTS;
+			case TOO_LARGE:
+				return HttpStatus.PAYLOAD_TOO_LARGE;
+			case TIMEOUT:
+			default:
+				return HttpStatus.SERVICE_UNAVAILABLE;
 		}
 	}
 }
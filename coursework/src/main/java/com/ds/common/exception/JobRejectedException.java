@@ -0,0 +1,28 @@
+package com.ds.common.exception;
+
+public class JobRejectedException extends Exception {
+
+    public enum Reason {
+        // the wait queue is full, the client may retry later
+        QUEUE_FULL,
+        // the job could not be admitted within the wait budget
+        TIMEOUT,
+        // the job needs more memory than the whole budget, retrying won't help
+        TOO_LARGE
+    }
+
+    private final Reason reason;
+
+    /***
+     * @param errorMessage
+     * @param reason : why the job was turned away
+     */
+    public JobRejectedException(String errorMessage, Reason reason) {
+        super(errorMessage);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
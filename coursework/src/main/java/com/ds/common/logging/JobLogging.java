@@ -0,0 +1,21 @@
+package com.ds.common.logging;
+
+import io.grpc.Metadata;
+
+import java.util.UUID;
+
+/**
+ * Correlation id shared by the log lines of a multiply job on the client and the gRPC servers.
+ */
+public class JobLogging {
+
+    // MDC key, printed by the log pattern in logback.xml
+    public static final String MDC_JOB_ID = "jobId";
+
+    // gRPC header carrying the job id from the client to the servers
+    public static final Metadata.Key<String> JOB_ID_HEADER = Metadata.Key.of("x-job-id", Metadata.ASCII_STRING_MARSHALLER);
+
+    public static String newJobId() {
+        return UUID.randomUUID().toString().substring(0, 8);
+    }
+}
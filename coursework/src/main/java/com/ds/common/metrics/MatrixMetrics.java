@@ -0,0 +1,73 @@
+package com.ds.common.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Meter names and helpers shared by the REST client and the gRPC servers.
+ */
+public class MatrixMetrics {
+
+    public static final String BLOCK_CALL = "matrix.block.call";
+    public static final String BLOCK_COMPUTE = "matrix.block.compute";
+    public static final String ENCODE = "matrix.encode";
+    public static final String DECODE = "matrix.decode";
+    public static final String FOOTPRINT = "matrix.footprint";
+    public static final String SERVER_COUNT = "matrix.servers.chosen";
+    public static final String ADMISSION_WAIT = "matrix.admission.wait";
+    public static final String BLOCK_PERMIT_WAIT = "matrix.block.permit.wait";
+    public static final String JOBS_IN_FLIGHT = "matrix.jobs.inflight";
+    public static final String JOBS_QUEUED = "matrix.jobs.queued";
+    public static final String JOBS_REJECTED = "matrix.jobs.rejected";
+    public static final String BLOCKS_IN_FLIGHT = "matrix.blocks.inflight";
+    public static final String MEMORY_RESERVED = "matrix.memory.reserved";
+    public static final String SERVER_CALLS_IN_FLIGHT = "matrix.server.calls.inflight";
+    public static final String CALLS_REJECTED = "matrix.calls.rejected";
+    public static final String SERVER_CALLS_WAITING = "matrix.server.calls.waiting";
+    public static final String DEADLINE = "matrix.deadline";
+
+    private final MeterRegistry registry;
+
+    public MatrixMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    /***
+     *  Times the given call under a percentile histogram
+     * @param name : meter name
+     * @param call
+     * @param tags : key/value pairs
+     * @return result of the call
+     */
+    public <T> T time(String name, Supplier<T> call, String... tags) {
+        return timer(name, tags).record(call);
+    }
+
+    public void record(String name, long nanos, String... tags) {
+        timer(name, tags).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void summary(String name, double amount, String... tags) {
+        DistributionSummary.builder(name)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(amount);
+    }
+
+    private Timer timer(String name, String... tags) {
+        // registry returns the existing meter for the same name and tags
+        return Timer.builder(name)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
@@ -58,6 +58,35 @@ public class MatrixUtil {
         return Arrays.deepToString(matrix);
     }
 
+    /***
+     *  Convert 2D array of a matrix to a string for logging, stopping after maxValues values
+     *  so that large matrices don't build multi-megabyte strings
+     * @param matrix
+     * @param maxValues
+     * @return
+     */
+    public static String summarizeMatrix(int[][] matrix, int maxValues) {
+        StringBuilder sb = new StringBuilder("[");
+        int remaining = maxValues;
+        for (int i = 0; i < matrix.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append('[');
+            for (int j = 0; j < matrix[i].length; j++) {
+                if (j > 0) {
+                    sb.append(", ");
+                }
+                if (remaining-- == 0) {
+                    return sb.append("... (").append(matrix.length).append('x').append(matrix[i].length).append(")").toString();
+                }
+                sb.append(matrix[i][j]);
+            }
+            sb.append(']');
+        }
+        return sb.append(']').toString();
+    }
+
     /***
      *  Converts given matrix to square matrix
      * @param matrixString
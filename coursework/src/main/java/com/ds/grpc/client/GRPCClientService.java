@@ -1,13 +1,26 @@
 package com.ds.grpc.client;
 
 import com.ds.common.exception.InvalidSquareMatrixException;
+import com.ds.common.exception.JobRejectedException;
+import com.ds.common.logging.JobLogging;
+import com.ds.common.metrics.MatrixMetrics;
 import com.ds.common.util.MatrixUtil;
 import com.ds.grpc.MatrixRequest;
 import com.ds.grpc.MatrixResponse;
 import com.ds.grpc.MatrixServiceGrpc;
 import com.ds.grpc.MatrixServiceGrpc.MatrixServiceBlockingStub;
+import io.grpc.Deadline;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.MetadataUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -16,26 +29,77 @@ import javax.annotation.PreDestroy;
 import java.util.HashMap;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
 
 import static com.ds.common.util.MatrixUtil.convertToSquareMatrix;
 
 @Service
 public class GRPCClientService {
 
+    private static final Logger log = LoggerFactory.getLogger(GRPCClientService.class);
+
     private int[] stubPorts = {8081, 8082, 8083, 8084, 8085, 8086, 8087, 8088};
 
+    // a block call rejected by a busy server is retried on the next server with exponential backoff
+    private static final int MAX_BLOCK_RETRIES = 3;
+    private static final long BLOCK_RETRY_BACKOFF_MS = 50L;
+
     @Value("${com.ds.grpc.client.serverIp}")
     private String serverIp;
 
+    // must allow the largest block responses, matches the server side limit
+    @Value("${com.ds.grpc.client.maxInboundMessageMb:64}")
+    private int maxInboundMessageMb;
+
+    // block calls of a job are cancelled callDeadlineFactor x the job's deadline after it was admitted, but no earlier than minCallDeadlineMs
+    @Value("${com.ds.grpc.client.callDeadlineFactor:10}")
+    private long callDeadlineFactor;
+
+    @Value("${com.ds.grpc.client.minCallDeadlineMs:30000}")
+    private long minCallDeadlineMs;
+
+    // input matrices are only logged at DEBUG level when enabled, truncated to logMatrixMaxValues values
+    @Value("${com.ds.grpc.client.logMatrices:false}")
+    private boolean logMatrices;
+
+    @Value("${com.ds.grpc.client.logMatrixMaxValues:64}")
+    private int logMatrixMaxValues;
+
     private ManagedChannel[] channelList;
     private MatrixServiceBlockingStub[] stubList;
     private BlockingQueue<Integer> stubIndicesQueue = new LinkedBlockingQueue<>(stubPorts.length);
 
+    private JobAdmissionService jobAdmissionService;
+    private MatrixMetrics metrics;
+    private AtomicInteger jobsInFlight = new AtomicInteger();
+
+    @Autowired
+    public GRPCClientService(JobAdmissionService jobAdmissionService, MeterRegistry meterRegistry) {
+        this.jobAdmissionService = jobAdmissionService;
+        this.metrics = new MatrixMetrics(meterRegistry);
+        meterRegistry.gauge(MatrixMetrics.JOBS_IN_FLIGHT, jobsInFlight);
+    }
+
     @PostConstruct
     public void init() throws InterruptedException {
-        channelList = createChannels();
+        init(createChannels());
+    }
+
+    /**
+     * Uses the given channels, one per server, instead of connecting to serverIp (e.g. in-process channels)
+     */
+    public void init(ManagedChannel[] channels) {
+        // stubs are picked by index from stubPorts.length servers, so a missing channel would fail only once it is picked
+        if (channels.length != stubPorts.length) {
+            throw new IllegalArgumentException("Expected " + stubPorts.length + " channels, one per server, got " + channels.length);
+        }
+        channelList = channels;
         stubList = createStubs();
     }
 
@@ -53,21 +117,38 @@ public class GRPCClientService {
      * @param deadline : deadline in nanoseconds
      * @return
      * @throws InvalidSquareMatrixException
+     * @throws JobRejectedException : raises if the job could not be admitted under the current load
      * @throws ExecutionException
      * @throws InterruptedException
      */
-    public String multiplyMatrices(String matrixString1, String matrixString2, long deadline) throws InvalidSquareMatrixException, ExecutionException, InterruptedException {
+    public String multiplyMatrices(String matrixString1, String matrixString2, long deadline) throws InvalidSquareMatrixException, JobRejectedException, ExecutionException, InterruptedException {
 
-        System.out.println(" ================= Executing multiply in client =============== ");
+        String jobId = JobLogging.newJobId();
+        MDC.put(JobLogging.MDC_JOB_ID, jobId);
+        try {
+            log.info("Executing multiply in client");
 
-        int[][] A = convertToSquareMatrix(matrixString1);
-        int[][] B = convertToSquareMatrix(matrixString2);
+            int[][] A = convertToSquareMatrix(matrixString1);
+            int[][] B = convertToSquareMatrix(matrixString2);
 
-        System.out.println("Matrix 1: " + MatrixUtil.encodeMatrix(A));
-        System.out.println("Matrix 2: " + MatrixUtil.encodeMatrix(B));
+            if (logMatrices && log.isDebugEnabled()) {
+                log.debug("Matrix 1: {}", MatrixUtil.summarizeMatrix(A, logMatrixMaxValues));
+                log.debug("Matrix 2: {}", MatrixUtil.summarizeMatrix(B, logMatrixMaxValues));
+            }
 
-        int[][] multipliedMatrixBlock = multiplyMatrixBlock(A, B, deadline);
-        return MatrixUtil.encodeMatrix(multipliedMatrixBlock);
+            try (JobAdmissionService.Admission ignored = jobAdmissionService.admit(A.length)) {
+                jobsInFlight.incrementAndGet();
+                try {
+                    Deadline callDeadline = callDeadlineFor(deadline);
+                    int[][] multipliedMatrixBlock = multiplyMatrixBlock(A, B, deadline, callDeadline, jobId);
+                    return encode(multipliedMatrixBlock);
+                } finally {
+                    jobsInFlight.decrementAndGet();
+                }
+            }
+        } finally {
+            MDC.remove(JobLogging.MDC_JOB_ID);
+        }
     }
 
 
@@ -104,12 +185,13 @@ public class GRPCClientService {
 
     private ManagedChannel[] createChannels() {
         ManagedChannel[] chans = new ManagedChannel[stubPorts.length];
-        System.out.println("Connecting to server at: " + serverIp);
+        log.info("Connecting to server at: {}", serverIp);
 
         for (int i = 0; i < stubPorts.length; i++) {
             chans[i] = ManagedChannelBuilder.forAddress(serverIp, stubPorts[i])
                     .keepAliveWithoutCalls(true)
                     .usePlaintext()
+                    .maxInboundMessageSize(maxInboundMessageMb * 1024 * 1024)
                     .build();
         }
         return chans;
@@ -120,24 +202,97 @@ public class GRPCClientService {
      * Add integer matrices via gRPC
      */
 
-    private int[][] addBlock(int A[][], int B[][], int stubIndex) {
-        System.out.println("Calling addBlock on server " + (stubIndex + 1));
-        MatrixRequest request = generateRequest(A, B);
-        MatrixResponse matrixAddResponse = this.stubList[stubIndex].addBlock(request);
-        int[][] summedMatrix = MatrixUtil.decodeMatrix(matrixAddResponse.getMatrix());
-        return summedMatrix;
+    private int[][] addBlock(int A[][], int B[][], int stubIndex, Deadline callDeadline, String jobId) {
+        MDC.put(JobLogging.MDC_JOB_ID, jobId);
+        try {
+            log.debug("Calling addBlock on server {}", stubIndex + 1);
+            return callWithBlockPermit(() -> generateRequest(A, B),
+                    (index, request) -> stubFor(index, callDeadline, jobId).addBlock(request), "add", stubIndex, A.length);
+        } finally {
+            MDC.remove(JobLogging.MDC_JOB_ID);
+        }
     }
 
 
     /**
      * Multiply integer matrices via gRPC
      */
-    private int[][] multiplyBlock(int A[][], int B[][], int stubIndex) {
-        System.out.println("Calling multiplyBlock on server " + (stubIndex + 1));
-        MatrixRequest request = generateRequest(A, B);
-        MatrixResponse matrixMultiplyResponse = this.stubList[stubIndex].multiplyBlock(request);
-        int[][] multipliedMatrix = MatrixUtil.decodeMatrix(matrixMultiplyResponse.getMatrix());
-        return multipliedMatrix;
+    private int[][] multiplyBlock(int A[][], int B[][], int stubIndex, Deadline callDeadline, String jobId) {
+        MDC.put(JobLogging.MDC_JOB_ID, jobId);
+        try {
+            log.debug("Calling multiplyBlock on server {}", stubIndex + 1);
+            return callWithBlockPermit(() -> generateRequest(A, B),
+                    (index, request) -> stubFor(index, callDeadline, jobId).multiplyBlock(request), "multiply", stubIndex, A.length);
+        } finally {
+            MDC.remove(JobLogging.MDC_JOB_ID);
+        }
+    }
+
+
+    /**
+     * Stub for the given server which sends the job id along with each call and cancels the call at the job's call deadline
+     */
+    private MatrixServiceBlockingStub stubFor(int stubIndex, Deadline callDeadline, String jobId) {
+        Metadata headers = new Metadata();
+        headers.put(JobLogging.JOB_ID_HEADER, jobId);
+        return this.stubList[stubIndex]
+                .withDeadline(callDeadline)
+                .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(headers));
+    }
+
+
+    /**
+     * Deadline shared by all block calls of a job, so calls of a job that can no longer finish don't keep servers busy
+     *
+     * @param deadline : deadline of the job in nanoseconds
+     */
+    private Deadline callDeadlineFor(long deadline) {
+        long timeoutNanos = Math.max(deadline * callDeadlineFactor, TimeUnit.MILLISECONDS.toNanos(minCallDeadlineMs));
+        return Deadline.after(timeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+
+    /**
+     * Holds an in-flight block permit while the request is encoded, the gRPC call is made and the response is decoded,
+     * so the encoded strings only exist for permitted blocks. The call is timed per operation, server and block size.
+     * If the server is busy (RESOURCE_EXHAUSTED) the call is retried on the next server from the stub queue.
+     */
+    private int[][] callWithBlockPermit(Supplier<MatrixRequest> requestSupplier, BiFunction<Integer, MatrixRequest, MatrixResponse> call,
+                                        String operation, int stubIndex, int blockSize) {
+        long waitStart = System.nanoTime();
+        try {
+            jobAdmissionService.acquireBlock();
+            metrics.record(MatrixMetrics.BLOCK_PERMIT_WAIT, System.nanoTime() - waitStart, "operation", operation);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a block permit", e);
+        }
+        try {
+            MatrixRequest request = requestSupplier.get();
+            int index = stubIndex;
+            for (int attempt = 0; ; attempt++) {
+                int server = index;
+                try {
+                    MatrixResponse response = metrics.time(MatrixMetrics.BLOCK_CALL, () -> call.apply(server, request),
+                            "operation", operation,
+                            "server", String.valueOf(server + 1),
+                            "blockSize", String.valueOf(blockSize));
+                    return decode(response.getMatrix());
+                } catch (StatusRuntimeException e) {
+                    if (e.getStatus().getCode() != Status.Code.RESOURCE_EXHAUSTED || attempt == MAX_BLOCK_RETRIES) {
+                        throw e;
+                    }
+                    log.warn("Server {} busy, retrying {} on the next server", server + 1, operation);
+                    Thread.sleep(BLOCK_RETRY_BACKOFF_MS << attempt);
+                    index = takeFromStubIndicesQueue(1)[0];
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying a block call", e);
+        } finally {
+            jobAdmissionService.releaseBlock();
+        }
     }
 
 
@@ -145,9 +300,9 @@ public class GRPCClientService {
      * encode the matrices and return a MatrixRequest object
      */
 
-    private static MatrixRequest generateRequest(int A[][], int B[][]) {
-        String matrixA = MatrixUtil.encodeMatrix(A);
-        String matrixB = MatrixUtil.encodeMatrix(B);
+    private MatrixRequest generateRequest(int A[][], int B[][]) {
+        String matrixA = encode(A);
+        String matrixB = encode(B);
 
         return MatrixRequest.newBuilder()
                 .setMatrixA(matrixA)
@@ -156,16 +311,27 @@ public class GRPCClientService {
     }
 
 
+    private String encode(int[][] matrix) {
+        return metrics.time(MatrixMetrics.ENCODE, () -> MatrixUtil.encodeMatrix(matrix), "side", "client");
+    }
+
+    private int[][] decode(String matrix) {
+        return metrics.time(MatrixMetrics.DECODE, () -> MatrixUtil.decodeMatrix(matrix), "side", "client");
+    }
+
+
     /***
      *  Multiply given 2 matrices by multiplying & adding blocks
      * @param A
      * @param B
      * @param deadline
+     * @param callDeadline : deadline of each block call
+     * @param jobId : correlation id sent along with each block call
      * @return
      * @throws InterruptedException
      * @throws ExecutionException
      */
-    private int[][] multiplyMatrixBlock(int[][] A, int[][] B, long deadline) throws InterruptedException, ExecutionException {
+    private int[][] multiplyMatrixBlock(int[][] A, int[][] B, long deadline, Deadline callDeadline, String jobId) throws InterruptedException, ExecutionException {
 
         // split matrices into 8 smaller blocks
         HashMap<String, int[][]> blocks = splitBlocks(A, B);
@@ -177,26 +343,33 @@ public class GRPCClientService {
         long startTime = System.nanoTime();
 
         // async calls to the multiplyBlock function
-        CompletableFuture<int[][]> A1A2Future = CompletableFuture.supplyAsync(() -> multiplyBlock(blocks.get("A1"), blocks.get("A2"), firstStubIndex));
+        CompletableFuture<int[][]> A1A2Future = CompletableFuture.supplyAsync(() -> multiplyBlock(blocks.get("A1"), blocks.get("A2"), firstStubIndex, callDeadline, jobId));
 
         // Once async function completes execution, this will be called
-        int[][] A1A2 = A1A2Future.get();
+        int[][] A1A2;
+        try {
+            A1A2 = A1A2Future.get();
+        } catch (ExecutionException e) {
+            log.error("Block calculation failed", e.getCause());
+            throw e;
+        }
         long endTime = System.nanoTime();
         long footprint = endTime - startTime;
+        metrics.record(MatrixMetrics.FOOTPRINT, footprint, "blockSize", String.valueOf(A.length));
 
-        System.out.println("Footprint for current : " + footprint);
+        log.info("Footprint for current : {}", footprint);
 
         // processing remaining blocks
 
         long numBlockCalls = 11L;
         int serverCount = (int) Math.ceil((float) footprint * (float) numBlockCalls / (float) deadline);
 
-        System.out.println("Original number of server requirement : " + serverCount);
+        log.info("Original number of server requirement : {}", serverCount);
 
         serverCount = Math.min(serverCount, 8);
+        metrics.summary(MatrixMetrics.SERVER_COUNT, serverCount);
 
-        System.out.println("Using " + serverCount + " servers for the rest of calculation");
-        System.out.println("==============================");
+        log.info("Using {} servers for the rest of calculation", serverCount);
 
         // takes stub indices from queue (FIFO) -> takes least recently used stub first
         int[] indices = takeFromStubIndicesQueue(serverCount);
@@ -219,108 +392,111 @@ public class GRPCClientService {
         // multiplications
         CompletableFuture<int[][]> B1C2 = CompletableFuture.supplyAsync(() -> {
             try {
-                return multiplyBlock(blocks.get("B1"), blocks.get("C2"), indexQueue.take());
+                return multiplyBlock(blocks.get("B1"), blocks.get("C2"), indexQueue.take(), callDeadline, jobId);
             } catch (InterruptedException e) {
-                e.printStackTrace();
+                throw new CompletionException(e);
             }
-            return null;
         });
 
         CompletableFuture<int[][]> A1B2 = CompletableFuture.supplyAsync(() -> {
             try {
-                return multiplyBlock(blocks.get("A1"), blocks.get("B2"), indexQueue.take());
+                return multiplyBlock(blocks.get("A1"), blocks.get("B2"), indexQueue.take(), callDeadline, jobId);
             } catch (InterruptedException e) {
-                e.printStackTrace();
+                throw new CompletionException(e);
             }
-            return null;
         });
 
         CompletableFuture<int[][]> B1D2 = CompletableFuture.supplyAsync(() -> {
             try {
-                return multiplyBlock(blocks.get("B1"), blocks.get("D2"), indexQueue.take());
+                return multiplyBlock(blocks.get("B1"), blocks.get("D2"), indexQueue.take(), callDeadline, jobId);
             } catch (InterruptedException e) {
-                e.printStackTrace();
+                throw new CompletionException(e);
             }
-            return null;
         });
 
         CompletableFuture<int[][]> C1A2 = CompletableFuture.supplyAsync(() -> {
             try {
-                return multiplyBlock(blocks.get("C1"), blocks.get("A2"), indexQueue.take());
+                return multiplyBlock(blocks.get("C1"), blocks.get("A2"), indexQueue.take(), callDeadline, jobId);
             } catch (InterruptedException e) {
-                e.printStackTrace();
+                throw new CompletionException(e);
             }
-            return null;
         });
 
         CompletableFuture<int[][]> D1C2 = CompletableFuture.supplyAsync(() -> {
             try {
-                return multiplyBlock(blocks.get("D1"), blocks.get("C2"), indexQueue.take());
+                return multiplyBlock(blocks.get("D1"), blocks.get("C2"), indexQueue.take(), callDeadline, jobId);
             } catch (InterruptedException e) {
-                e.printStackTrace();
+                throw new CompletionException(e);
             }
-            return null;
         });
 
         CompletableFuture<int[][]> C1B2 = CompletableFuture.supplyAsync(() -> {
             try {
-                return multiplyBlock(blocks.get("C1"), blocks.get("B1"), indexQueue.take());
+                return multiplyBlock(blocks.get("C1"), blocks.get("B1"), indexQueue.take(), callDeadline, jobId);
             } catch (InterruptedException e) {
-                e.printStackTrace();
+                throw new CompletionException(e);
             }
-            return null;
         });
 
         CompletableFuture<int[][]> D1D2 = CompletableFuture.supplyAsync(() -> {
             try {
-                return multiplyBlock(blocks.get("D1"), blocks.get("D2"), indexQueue.take());
+                return multiplyBlock(blocks.get("D1"), blocks.get("D2"), indexQueue.take(), callDeadline, jobId);
             } catch (InterruptedException e) {
-                e.printStackTrace();
+                throw new CompletionException(e);
             }
-            return null;
         });
 
         // additions
         CompletableFuture<int[][]> A3 = CompletableFuture.supplyAsync(() -> {
             try {
-                return addBlock(A1A2, B1C2.get(), indexQueue.take());
+                return addBlock(A1A2, B1C2.get(), indexQueue.take(), callDeadline, jobId);
             } catch (InterruptedException | ExecutionException e) {
-                e.printStackTrace();
+                throw new CompletionException(e);
             }
-            return null;
         });
 
         CompletableFuture<int[][]> B3 = CompletableFuture.supplyAsync(() -> {
             try {
-                return addBlock(A1B2.get(), B1D2.get(), indexQueue.take());
+                return addBlock(A1B2.get(), B1D2.get(), indexQueue.take(), callDeadline, jobId);
             } catch (InterruptedException | ExecutionException e) {
-                e.printStackTrace();
+                throw new CompletionException(e);
             }
-            return null;
         });
 
         CompletableFuture<int[][]> C3 = CompletableFuture.supplyAsync(() -> {
             try {
-                return addBlock(C1A2.get(), D1C2.get(), indexQueue.take());
+                return addBlock(C1A2.get(), D1C2.get(), indexQueue.take(), callDeadline, jobId);
             } catch (InterruptedException | ExecutionException e) {
-                e.printStackTrace();
+                throw new CompletionException(e);
             }
-            return null;
         });
 
         CompletableFuture<int[][]> D3 = CompletableFuture.supplyAsync(() -> {
             try {
-                return addBlock(C1B2.get(), D1D2.get(), indexQueue.take());
+                return addBlock(C1B2.get(), D1D2.get(), indexQueue.take(), callDeadline, jobId);
             } catch (InterruptedException | ExecutionException e) {
-                e.printStackTrace();
+                throw new CompletionException(e);
             }
-            return null;
         });
 
+        // wait for every block call to settle, even after a failure, so none outlives the job's admission
+        try {
+            CompletableFuture.allOf(B1C2, A1B2, B1D2, C1A2, D1C2, C1B2, D1D2, A3, B3, C3, D3).get();
+        } catch (ExecutionException e) {
+            log.error("Block calculation failed", e.getCause());
+            throw e;
+        }
+
         // join the remote calculations back together
         int[][] res = joinBlocks(A3.get(), B3.get(), C3.get(), D3.get());
 
-        System.out.println("================ Calculations Complete ===============");
+        // whether the footprint based scaling kept the block calculation within the deadline
+        long elapsed = System.nanoTime() - startTime;
+        String outcome = elapsed <= deadline ? "met" : "missed";
+        metrics.getRegistry().counter(MatrixMetrics.DEADLINE, "outcome", outcome, "servers", String.valueOf(serverCount)).increment();
+        log.info("Deadline {} : {}ns of {}ns", outcome, elapsed, deadline);
+
+        log.info("Calculations complete");
         return res;
     }
 
@@ -332,7 +508,7 @@ public class GRPCClientService {
 	 * @param D3
 	 * @return
 	 */
-    private int[][] joinBlocks(int[][] A3, int[][] B3, int[][] C3, int[][] D3) {
+    static int[][] joinBlocks(int[][] A3, int[][] B3, int[][] C3, int[][] D3) {
         int n = A3.length;
         int bSize = n / 2;
         int[][] res = new int[n][n];
@@ -366,7 +542,7 @@ public class GRPCClientService {
      * @param B
      * @return
      */
-    private HashMap<String, int[][]> splitBlocks(int[][] A, int[][] B) {
+    static HashMap<String, int[][]> splitBlocks(int[][] A, int[][] B) {
 
         int n = A.length;
         int bSize = n / 2;
@@ -0,0 +1,185 @@
+package com.ds.grpc.client;
+
+import com.ds.common.exception.JobRejectedException;
+import com.ds.common.metrics.MatrixMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of multiply jobs running at once based on an estimated memory budget,
+ * and the number of block calls in flight across all jobs.
+ */
+@Service
+public class JobAdmissionService {
+
+    private static final Logger log = LoggerFactory.getLogger(JobAdmissionService.class);
+
+    // int[][] copies held per cell of n x n for a job: A, B, 8 split blocks, 11 block results and the joined result
+    private static final long INT_COPIES_PER_CELL = 22L;
+
+    // strings held for the whole job: both uploads (~2 chars per cell as bytes and as a UTF-16 string) and the result (~7 chars)
+    private static final long JOB_STRING_BYTES_PER_CELL = 2L * 2L * 3L + 7L * 2L;
+
+    // a block call holds its encoded request (2 x ~3 chars) and response (~7 chars) as a UTF-16 string and a UTF-8 message,
+    // only while it has a block permit. up to 7 block calls (the multiplications) of a job run at once.
+    // short lived decoding garbage isn't counted
+    private static final long BLOCK_CALL_BYTES_PER_CELL = (2L * 3L + 7L) * 3L;
+    private static final long CONCURRENT_BLOCK_CALLS = 7L;
+
+    // 387 bytes per cell, so a 512MB budget admits matrices up to 1177 x 1177 (1024 x 1024 with room for one more job of 512 x 512)
+    static final long BYTES_PER_CELL = INT_COPIES_PER_CELL * Integer.BYTES + JOB_STRING_BYTES_PER_CELL
+            + CONCURRENT_BLOCK_CALLS * BLOCK_CALL_BYTES_PER_CELL;
+
+    // 0 uses half of the maximum heap size
+    @Value("${com.ds.grpc.client.admission.maxMemoryMb:0}")
+    private int maxMemoryMb;
+
+    // 8 servers x com.ds.grpc.server.maxConcurrentCalls (4)
+    @Value("${com.ds.grpc.client.admission.maxInFlightBlocks:32}")
+    private int maxInFlightBlocks;
+
+    @Value("${com.ds.grpc.client.admission.maxQueuedJobs:16}")
+    private int maxQueuedJobs;
+
+    @Value("${com.ds.grpc.client.admission.queueTimeoutMs:5000}")
+    private long queueTimeoutMs;
+
+    // memory budget in KiB so that it fits in semaphore permits
+    private Semaphore memoryPermits;
+    private Semaphore blockPermits;
+    private final AtomicInteger queuedJobs = new AtomicInteger();
+
+    private MeterRegistry meterRegistry;
+    private MatrixMetrics metrics;
+
+    @Autowired
+    public JobAdmissionService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.metrics = new MatrixMetrics(meterRegistry);
+    }
+
+    /**
+     * For use outside of Spring (benchmarks, tests), call init() afterwards. A maxMemoryMb of 0 uses half of the maximum heap size
+     */
+    public JobAdmissionService(MeterRegistry meterRegistry, int maxMemoryMb, int maxInFlightBlocks, int maxQueuedJobs, long queueTimeoutMs) {
+        this.meterRegistry = meterRegistry;
+        this.metrics = new MatrixMetrics(meterRegistry);
+        this.maxMemoryMb = maxMemoryMb;
+        this.maxInFlightBlocks = maxInFlightBlocks;
+        this.maxQueuedJobs = maxQueuedJobs;
+        this.queueTimeoutMs = queueTimeoutMs;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (maxMemoryMb <= 0) {
+            maxMemoryMb = (int) (Runtime.getRuntime().maxMemory() / 2 / (1024 * 1024));
+        }
+        log.info("Admitting multiply jobs within a memory budget of {}MB, up to {} x {} matrices",
+                maxMemoryMb, maxMatrixSize(), maxMatrixSize());
+
+        memoryPermits = new Semaphore(maxMemoryMb * 1024, true);
+        blockPermits = new Semaphore(maxInFlightBlocks, true);
+
+        meterRegistry.gauge(MatrixMetrics.JOBS_QUEUED, queuedJobs);
+        meterRegistry.gauge(MatrixMetrics.BLOCKS_IN_FLIGHT, blockPermits, permits -> maxInFlightBlocks - permits.availablePermits());
+        meterRegistry.gauge(MatrixMetrics.MEMORY_RESERVED, memoryPermits, permits -> (maxMemoryMb * 1024 - permits.availablePermits()) * 1024.0);
+    }
+
+    /***
+     *  Reserves memory for a multiply job on n x n matrices, waiting in a bounded queue if the budget is used up
+     * @param n : matrix size
+     * @return the reservation, to be closed once the job completes
+     * @throws JobRejectedException : raises if the queue is full, the wait times out or the job can never fit
+     * @throws InterruptedException
+     */
+    public Admission admit(int n) throws JobRejectedException, InterruptedException {
+        int kib = estimateKib(n);
+
+        if (kib > maxMemoryMb * 1024) {
+            throw new JobRejectedException("Matrix of size " + n + " needs ~" + (kib / 1024)
+                    + "MB which exceeds the memory budget of " + maxMemoryMb + "MB", JobRejectedException.Reason.TOO_LARGE);
+        }
+
+        long startTime = System.nanoTime();
+
+        // fast path, no queueing needed. the timed tryAcquire respects fairness so it doesn't barge past waiting jobs
+        if (memoryPermits.tryAcquire(kib, 0, TimeUnit.MILLISECONDS)) {
+            recordAdmissionWait(startTime, "admitted");
+            return new Admission(kib);
+        }
+
+        if (queuedJobs.incrementAndGet() > maxQueuedJobs) {
+            queuedJobs.decrementAndGet();
+            recordAdmissionWait(startTime, "queue_full");
+            throw new JobRejectedException("Too many multiply jobs waiting, try again later", JobRejectedException.Reason.QUEUE_FULL);
+        }
+        try {
+            if (!memoryPermits.tryAcquire(kib, queueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                recordAdmissionWait(startTime, "timeout");
+                throw new JobRejectedException("Server busy, could not admit job within " + queueTimeoutMs + "ms", JobRejectedException.Reason.TIMEOUT);
+            }
+        } finally {
+            queuedJobs.decrementAndGet();
+        }
+        recordAdmissionWait(startTime, "admitted");
+        return new Admission(kib);
+    }
+
+    private void recordAdmissionWait(long startTime, String outcome) {
+        metrics.record(MatrixMetrics.ADMISSION_WAIT, System.nanoTime() - startTime, "outcome", outcome);
+    }
+
+    /**
+     * Blocks until a block call can be sent, applying backpressure on admitted jobs.
+     */
+    void acquireBlock() throws InterruptedException {
+        blockPermits.acquire();
+    }
+
+    void releaseBlock() {
+        blockPermits.release();
+    }
+
+    private static int estimateKib(int n) {
+        long cells = (long) n * n;
+        long bytes = cells * BYTES_PER_CELL;
+        return (int) Math.min(Integer.MAX_VALUE, (bytes + 1023) / 1024);
+    }
+
+    /**
+     * @return the largest matrix size that fits the memory budget
+     */
+    int maxMatrixSize() {
+        return (int) Math.sqrt((double) maxMemoryMb * 1024 * 1024 / BYTES_PER_CELL);
+    }
+
+    /**
+     * Memory reservation held by a running job.
+     */
+    public class Admission implements AutoCloseable {
+        private final int kib;
+        private boolean released;
+
+        private Admission(int kib) {
+            this.kib = kib;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                memoryPermits.release(kib);
+            }
+        }
+    }
+}
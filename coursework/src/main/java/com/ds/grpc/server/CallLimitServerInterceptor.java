@@ -0,0 +1,165 @@
+package com.ds.grpc.server;
+
+import com.ds.common.metrics.MatrixMetrics;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limits the number of block calls a server works on at once using gRPC flow control.
+ * A call only requests its message from the transport once it holds a permit, so waiting calls
+ * don't hold a thread or their decoded request. Calls beyond maxWaitingCalls are rejected straight away.
+ */
+public class CallLimitServerInterceptor implements ServerInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(CallLimitServerInterceptor.class);
+
+    private final int threadNumber;
+    private final int maxConcurrentCalls;
+    private final int maxWaitingCalls;
+    private final MeterRegistry meterRegistry;
+    private final String server;
+
+    // guarded by this
+    private int activeCalls;
+    private final ArrayDeque<GatedCall<?, ?>> waitingCalls = new ArrayDeque<>();
+
+    public CallLimitServerInterceptor(int threadNumber, int maxConcurrentCalls, int maxWaitingCalls, MeterRegistry meterRegistry) {
+        this.threadNumber = threadNumber;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxWaitingCalls = maxWaitingCalls;
+        this.meterRegistry = meterRegistry;
+        this.server = String.valueOf(threadNumber);
+
+        meterRegistry.gauge(MatrixMetrics.SERVER_CALLS_IN_FLIGHT, Tags.of("server", server), this, CallLimitServerInterceptor::getActiveCalls);
+        meterRegistry.gauge(MatrixMetrics.SERVER_CALLS_WAITING, Tags.of("server", server), this, CallLimitServerInterceptor::getWaitingCalls);
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        GatedCall<ReqT, RespT> gatedCall = new GatedCall<>(call);
+
+        boolean admitted;
+        synchronized (this) {
+            if (activeCalls < maxConcurrentCalls) {
+                activeCalls++;
+                gatedCall.admitted = true;
+                admitted = true;
+            } else if (waitingCalls.size() < maxWaitingCalls) {
+                waitingCalls.add(gatedCall);
+                admitted = false;
+            } else {
+                log.warn("Server {} overloaded, rejecting {}", threadNumber, call.getMethodDescriptor().getFullMethodName());
+                meterRegistry.counter(MatrixMetrics.CALLS_REJECTED, "server", server).increment();
+                call.close(Status.RESOURCE_EXHAUSTED
+                        .withDescription("Server " + threadNumber + " is at its concurrent call limit"), new Metadata());
+                return new ServerCall.Listener<ReqT>() {};
+            }
+        }
+
+        // the handler asks for the request message here, which is held back until the call is admitted
+        ServerCall.Listener<ReqT> listener = next.startCall(gatedCall, headers);
+        if (admitted) {
+            gatedCall.open();
+        }
+
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT>(listener) {
+            @Override
+            public void onCancel() {
+                release(gatedCall);
+                super.onCancel();
+            }
+
+            @Override
+            public void onComplete() {
+                release(gatedCall);
+                super.onComplete();
+            }
+        };
+    }
+
+    /**
+     * Frees the slot of a finished call (or removes it from the waiting calls) and admits the next waiting call
+     */
+    private void release(GatedCall<?, ?> gatedCall) {
+        if (!gatedCall.released.compareAndSet(false, true)) {
+            return;
+        }
+
+        GatedCall<?, ?> nextCall = null;
+        synchronized (this) {
+            if (!gatedCall.admitted) {
+                waitingCalls.remove(gatedCall);
+                return;
+            }
+            nextCall = waitingCalls.poll();
+            if (nextCall == null) {
+                activeCalls--;
+            } else {
+                nextCall.admitted = true;
+            }
+        }
+        if (nextCall != null) {
+            nextCall.open();
+        }
+    }
+
+    private synchronized double getActiveCalls() {
+        return activeCalls;
+    }
+
+    private synchronized double getWaitingCalls() {
+        return waitingCalls.size();
+    }
+
+    /**
+     * Defers the handler's requests for messages until the call is admitted
+     */
+    private class GatedCall<ReqT, RespT> extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+        // guarded by CallLimitServerInterceptor.this
+        private boolean admitted;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        // guarded by this
+        private boolean open;
+        private int pendingRequests;
+
+        GatedCall(ServerCall<ReqT, RespT> delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public synchronized void request(int numMessages) {
+            if (open) {
+                super.request(numMessages);
+            } else {
+                pendingRequests += numMessages;
+            }
+        }
+
+        synchronized void open() {
+            open = true;
+            if (pendingRequests > 0) {
+                super.request(pendingRequests);
+                pendingRequests = 0;
+            }
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            super.close(status, trailers);
+            release(this);
+        }
+    }
+}
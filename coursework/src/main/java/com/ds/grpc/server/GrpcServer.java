@@ -1,19 +1,44 @@
 package com.ds.grpc.server;
 
 import ch.qos.logback.classic.Level;
+import com.sun.net.httpserver.HttpServer;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
+import io.grpc.ServerInterceptors;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class GrpcServer extends Thread {
+    private static final Logger log = LoggerFactory.getLogger(GrpcServer.class);
+
     private int port;
     private int threadNumber;
+    private MeterRegistry meterRegistry;
     private static int[] ports = {8081, 8082, 8083, 8084, 8085, 8086, 8087, 8088};
 
-    public GrpcServer(int port, int threadNumber) {
+    // overridable with -Dcom.ds.grpc.server.maxConcurrentCalls / maxWaitingCalls / executorThreads / maxInboundMessageMb
+    // 8 servers x 4 calls matches the client's com.ds.grpc.client.admission.maxInFlightBlocks (32)
+    private static final int MAX_CONCURRENT_CALLS = Integer.getInteger("com.ds.grpc.server.maxConcurrentCalls", 4);
+    private static final int MAX_WAITING_CALLS = Integer.getInteger("com.ds.grpc.server.maxWaitingCalls", 16);
+    // computing calls plus spare threads for transport callbacks (cancellation, waiting calls being started)
+    private static final int EXECUTOR_THREADS = Integer.getInteger("com.ds.grpc.server.executorThreads", MAX_CONCURRENT_CALLS + 2);
+    private static final int MAX_INBOUND_MESSAGE_MB = Integer.getInteger("com.ds.grpc.server.maxInboundMessageMb", 64);
+    private static final int METRICS_PORT = Integer.getInteger("com.ds.grpc.server.metricsPort", 9464);
+
+    public GrpcServer(int port, int threadNumber, MeterRegistry meterRegistry) {
         this.port = port;
         this.threadNumber = threadNumber;
+        this.meterRegistry = meterRegistry;
     }
 
     public static void main(String[] args) {
@@ -24,28 +49,75 @@ public class GrpcServer extends Thread {
         // get the number of processors available
         Runtime runtime = Runtime.getRuntime();
         int numberOfProcessors = runtime.availableProcessors();
-        System.out.println("Number of processors available : " + numberOfProcessors);
+        log.info("Number of processors available : {}", numberOfProcessors);
+
+        PrometheusMeterRegistry meterRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        meterRegistry.config().commonTags("application", "matrix-grpc");
+        startMetricsEndpoint(meterRegistry);
+
+        startFleet(numberOfProcessors, meterRegistry);
+    }
 
-        for (int i = 0; i < numberOfProcessors; i++) {
-            new GrpcServer(ports[i], i + 1).start();
+    /***
+     *  Starts a server thread on each of the first count ports (at most 8, one per client stub)
+     * @param count
+     * @param meterRegistry
+     * @return number of servers started
+     */
+    public static int startFleet(int count, MeterRegistry meterRegistry) {
+        int servers = Math.min(count, ports.length);
+        for (int i = 0; i < servers; i++) {
+            new GrpcServer(ports[i], i + 1, meterRegistry).start();
+        }
+        return servers;
+    }
+
+    /**
+     * Exposes the metrics of all servers in this process for scraping at /metrics
+     */
+    private static void startMetricsEndpoint(PrometheusMeterRegistry meterRegistry) {
+        try {
+            HttpServer httpServer = HttpServer.create(new InetSocketAddress(METRICS_PORT), 0);
+            httpServer.createContext("/metrics", exchange -> {
+                byte[] body = meterRegistry.scrape().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(body);
+                }
+            });
+            httpServer.start();
+            log.info("Metrics available on {}/metrics", METRICS_PORT);
+        } catch (IOException e) {
+            log.error("Could not start metrics endpoint on {}", METRICS_PORT, e);
         }
     }
 
     public void run() {
+        ExecutorService executor = Executors.newFixedThreadPool(EXECUTOR_THREADS);
+
+        // interceptors run last to first: the call limit applies before anything else
         Server server = ServerBuilder.forPort(port)
-                .addService(new MatrixServiceGrpcImpl(threadNumber)).build();
+                .executor(executor)
+                .maxInboundMessageSize(MAX_INBOUND_MESSAGE_MB * 1024 * 1024)
+                .addService(ServerInterceptors.intercept(
+                        new MatrixServiceGrpcImpl(threadNumber, meterRegistry),
+                        new JobIdServerInterceptor(),
+                        new CallLimitServerInterceptor(threadNumber, MAX_CONCURRENT_CALLS, MAX_WAITING_CALLS, meterRegistry)))
+                .build();
 
 
-        System.out.println("Starting server " + threadNumber + " on " + port);
+        log.info("Starting server {} on {}", threadNumber, port);
 
         try {
             server.start();
-            System.out.println("Server " + threadNumber + " started on " + port);
-            System.out.println("=============================");
+            log.info("Server {} started on {}", threadNumber, port);
             server.awaitTermination();
 
         } catch (IOException | InterruptedException e) {
-            e.printStackTrace();
+            log.error("Server {} on {} stopped", threadNumber, port, e);
+        } finally {
+            executor.shutdown();
         }
     }
 }
@@ -0,0 +1,26 @@
+package com.ds.grpc.server;
+
+import com.ds.common.logging.JobLogging;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+
+/**
+ * Reads the job id sent by the client and makes it available to the service through the gRPC context
+ */
+public class JobIdServerInterceptor implements ServerInterceptor {
+
+    static final Context.Key<String> JOB_ID = Context.key(JobLogging.MDC_JOB_ID);
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        String jobId = headers.get(JobLogging.JOB_ID_HEADER);
+        if (jobId == null) {
+            return next.startCall(call, headers);
+        }
+        return Contexts.interceptCall(Context.current().withValue(JOB_ID, jobId), call, headers, next);
+    }
+}
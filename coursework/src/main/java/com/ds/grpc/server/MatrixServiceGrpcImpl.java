@@ -1,32 +1,43 @@
 package com.ds.grpc.server;
 
+import com.ds.common.logging.JobLogging;
+import com.ds.common.metrics.MatrixMetrics;
 import com.ds.common.util.MatrixUtil;
 import com.ds.grpc.MatrixRequest;
 import com.ds.grpc.MatrixResponse;
 import com.ds.grpc.MatrixServiceGrpc;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 
 import javax.el.MethodNotFoundException;
 
 public class MatrixServiceGrpcImpl extends MatrixServiceGrpc.MatrixServiceImplBase {
 
+	private static final Logger log = LoggerFactory.getLogger(MatrixServiceGrpcImpl.class);
+
 	private int threadNumber;
 
-	MatrixServiceGrpcImpl(int threadNumber) {
+	private MatrixMetrics metrics;
+	private String server;
+
+	// the number of concurrent calls is limited by CallLimitServerInterceptor before the request is read
+	MatrixServiceGrpcImpl(int threadNumber, MeterRegistry meterRegistry) {
 		this.threadNumber = threadNumber;
+		this.metrics = new MatrixMetrics(meterRegistry);
+		this.server = String.valueOf(threadNumber);
 	}
 
 	@Override
 	public void addBlock(MatrixRequest request, StreamObserver<MatrixResponse> responseObserver) {
-		System.out.println("addBlock called on server "+ threadNumber);
-		System.out.println("*****************************");
 		requestHandler(request, responseObserver, OperationType.ADD);
 	}
 
 	@Override
 	public void multiplyBlock(MatrixRequest request, StreamObserver<MatrixResponse> responseObserver) {
-		System.out.println("multiplyBlock called on server " + threadNumber);
-		System.out.println("*****************************");
 		requestHandler(request, responseObserver, OperationType.MULTIPLY);
 	}
 
@@ -35,11 +46,39 @@ public class MatrixServiceGrpcImpl extends MatrixServiceGrpc.MatrixServiceImplBa
 	 */
 	private void requestHandler(MatrixRequest request, StreamObserver<MatrixResponse> responseObserver, OperationType operation) throws MethodNotFoundException {
 
+		ServerCallStreamObserver<MatrixResponse> serverObserver = (ServerCallStreamObserver<MatrixResponse>) responseObserver;
+
+		String jobId = JobIdServerInterceptor.JOB_ID.get();
+		if (jobId != null) {
+			MDC.put(JobLogging.MDC_JOB_ID, jobId);
+		}
+		try {
+			log.debug("{} called on server {}", operation, threadNumber);
+
+			// the client has given up while the call was waiting to be admitted (deadline exceeded / cancelled)
+			if (serverObserver.isCancelled()) {
+				log.debug("{} on server {} cancelled by the client, skipping", operation, threadNumber);
+				return;
+			}
+
+			handleRequest(request, serverObserver, operation);
+		} finally {
+			MDC.remove(JobLogging.MDC_JOB_ID);
+		}
+	}
+
+	private void handleRequest(MatrixRequest request, ServerCallStreamObserver<MatrixResponse> responseObserver, OperationType operation) throws MethodNotFoundException {
+
 		// decode matrixA and matrixB from the request
-		int[][] decodedMatrixA = MatrixUtil.decodeMatrix(request.getMatrixA());
-		int[][] decodedMatrixB = MatrixUtil.decodeMatrix(request.getMatrixB());
+		int[][] decodedMatrixA = metrics.time(MatrixMetrics.DECODE, () -> MatrixUtil.decodeMatrix(request.getMatrixA()), "side", "server");
+		int[][] decodedMatrixB = metrics.time(MatrixMetrics.DECODE, () -> MatrixUtil.decodeMatrix(request.getMatrixB()), "side", "server");
+
+		if (responseObserver.isCancelled()) {
+			return;
+		}
 
 		int[][] result;
+		long startTime = System.nanoTime();
 
 		switch(operation) {
 			case ADD:
@@ -49,25 +88,34 @@ public class MatrixServiceGrpcImpl extends MatrixServiceGrpc.MatrixServiceImplBa
 				result = multiplyMatrices(decodedMatrixA, decodedMatrixB);
 				break;
 			default:
-				System.out.println("Unidentified Operation: " + operation);
+				log.error("Unidentified Operation: {}", operation);
 				throw new MethodNotFoundException("Couldn't find method: " + operation);
 		}
 
+		metrics.record(MatrixMetrics.BLOCK_COMPUTE, System.nanoTime() - startTime,
+			"operation", operation.name().toLowerCase(),
+			"server", server,
+			"blockSize", String.valueOf(decodedMatrixA.length));
+
 		// encode the resultant matrix as a string
-		String encodedMatrix = MatrixUtil.encodeMatrix(result);
+		String encodedMatrix = metrics.time(MatrixMetrics.ENCODE, () -> MatrixUtil.encodeMatrix(result), "side", "server");
 
 		// generate the matrix response object
 		MatrixResponse response = MatrixResponse.newBuilder()
 			.setMatrix(encodedMatrix)
 			.build();
 
+		if (responseObserver.isCancelled()) {
+			return;
+		}
+
 		// send response of gRPC
 		responseObserver.onNext(response);
 		responseObserver.onCompleted();
 	}
 
 
-	private static int[][] addMatrices(int[][] matrixA, int[][]matrixB) {
+	static int[][] addMatrices(int[][] matrixA, int[][]matrixB) {
 
 		int n = matrixA.length;
 		int[][] result = new int[n][n];
@@ -81,7 +129,7 @@ public class MatrixServiceGrpcImpl extends MatrixServiceGrpc.MatrixServiceImplBa
 	}
 
 
-	private static int[][] multiplyMatrices(int A[][], int B[][]) {
+	static int[][] multiplyMatrices(int A[][], int B[][]) {
 
 		int n = A.length;
 		int blockSize = n/2;
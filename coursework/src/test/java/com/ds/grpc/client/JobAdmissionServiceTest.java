@@ -0,0 +1,88 @@
+package com.ds.grpc.client;
+
+import com.ds.common.exception.JobRejectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class JobAdmissionServiceTest {
+
+    // a 32 x 32 job needs ~387KiB, so two of them fit a 1MB budget but not three
+    private static final int SMALL_JOB = 32;
+    private static final int LARGE_JOB = 64;
+
+    private JobAdmissionService createService(int maxQueuedJobs, long queueTimeoutMs) {
+        JobAdmissionService service = new JobAdmissionService(new SimpleMeterRegistry(), 1, 32, maxQueuedJobs, queueTimeoutMs);
+        service.init();
+        return service;
+    }
+
+    @Test
+    public void rejectsWithQueueFullWhenNoJobMayWait() throws Exception {
+        JobAdmissionService service = createService(0, 1000L);
+
+        try (JobAdmissionService.Admission first = service.admit(SMALL_JOB);
+             JobAdmissionService.Admission second = service.admit(SMALL_JOB)) {
+            assertRejected(service, SMALL_JOB, JobRejectedException.Reason.QUEUE_FULL);
+        }
+    }
+
+    @Test
+    public void rejectsWithTimeoutWhenBudgetIsNotFreedInTime() throws Exception {
+        JobAdmissionService service = createService(1, 50L);
+
+        try (JobAdmissionService.Admission first = service.admit(SMALL_JOB);
+             JobAdmissionService.Admission second = service.admit(SMALL_JOB)) {
+            assertRejected(service, SMALL_JOB, JobRejectedException.Reason.TIMEOUT);
+        }
+    }
+
+    @Test
+    public void rejectsJobsLargerThanTheBudget() throws Exception {
+        JobAdmissionService service = createService(1, 1000L);
+
+        assertRejected(service, LARGE_JOB, JobRejectedException.Reason.TOO_LARGE);
+    }
+
+    @Test
+    public void closeReturnsTheReservationOnce() throws Exception {
+        JobAdmissionService service = createService(1, 50L);
+
+        JobAdmissionService.Admission admission = service.admit(SMALL_JOB);
+        admission.close();
+        admission.close();
+
+        // both fit again after the release, a double release would let a third job in as well
+        try (JobAdmissionService.Admission first = service.admit(SMALL_JOB);
+             JobAdmissionService.Admission second = service.admit(SMALL_JOB)) {
+            assertRejected(service, SMALL_JOB, JobRejectedException.Reason.TIMEOUT);
+        }
+    }
+
+    @Test
+    public void waitingJobIsAdmittedOnceBudgetIsReleased() throws Exception {
+        JobAdmissionService service = createService(1, 5000L);
+
+        JobAdmissionService.Admission first = service.admit(SMALL_JOB);
+        JobAdmissionService.Admission second = service.admit(SMALL_JOB);
+
+        Thread releaser = new Thread(first::close);
+        releaser.start();
+        try (JobAdmissionService.Admission third = service.admit(SMALL_JOB)) {
+            releaser.join();
+        } finally {
+            second.close();
+        }
+    }
+
+    private static void assertRejected(JobAdmissionService service, int n, JobRejectedException.Reason reason) throws InterruptedException {
+        try {
+            service.admit(n).close();
+            fail("Expected the job to be rejected with " + reason);
+        } catch (JobRejectedException e) {
+            assertEquals(reason, e.getReason());
+        }
+    }
+}
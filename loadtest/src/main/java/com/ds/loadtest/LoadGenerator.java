@@ -0,0 +1,257 @@
+package com.ds.loadtest;
+
+import ch.qos.logback.classic.LoggerContext;
+import com.ds.api.application.RestServiceApplication;
+import com.ds.grpc.server.GrpcServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives /matrix-multiply with concurrent requests for each combination of matrix size and deadline,
+ * and reports the latency distribution and how often the response came back within the deadline,
+ * next to the service's own deadline outcomes per server count scraped from /actuator/prometheus.
+ *
+ * Configured with system properties, e.g.
+ * mvn exec:java -Dcom.ds.loadtest.sizes=64,256 -Dcom.ds.loadtest.deadlines=50000000 -Dcom.ds.loadtest.startServers=true
+ */
+public class LoadGenerator {
+    private static final Logger log = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private static final String URL = System.getProperty("com.ds.loadtest.url", "http://localhost:8080/matrix-multiply");
+    private static final String METRICS_URL = System.getProperty("com.ds.loadtest.metricsUrl", "http://localhost:8080/actuator/prometheus");
+    private static final int CONCURRENCY = Integer.getInteger("com.ds.loadtest.concurrency", 4);
+    private static final int REQUESTS = Integer.getInteger("com.ds.loadtest.requests", 50);
+    private static final int WARMUP_REQUESTS = Integer.getInteger("com.ds.loadtest.warmupRequests", 5);
+    private static final int[] SIZES = parseInts(System.getProperty("com.ds.loadtest.sizes", "64,128,256"));
+    // deadlines in nanoseconds, as taken by the REST service
+    private static final long[] DEADLINES = parseLongs(System.getProperty("com.ds.loadtest.deadlines", "10000000,100000000,1000000000"));
+    // start the gRPC server fleet (and the REST service) in this process instead of using running ones
+    private static final boolean START_SERVERS = Boolean.getBoolean("com.ds.loadtest.startServers");
+    private static final int SERVERS = Integer.getInteger("com.ds.loadtest.servers", 8);
+
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    public static void main(String[] args) throws InterruptedException {
+        if (START_SERVERS) {
+            int servers = GrpcServer.startFleet(SERVERS, new SimpleMeterRegistry());
+            log.info("Started {} gRPC servers", servers);
+            SpringApplication.run(RestServiceApplication.class);
+        }
+
+        LoadGenerator loadGenerator = new LoadGenerator();
+        List<Result> results = new ArrayList<>();
+        for (int size : SIZES) {
+            for (long deadline : DEADLINES) {
+                results.add(loadGenerator.run(size, deadline));
+            }
+        }
+        printReport(results);
+
+        // flush the async log appender before exiting
+        ((LoggerContext) LoggerFactory.getILoggerFactory()).stop();
+
+        // server threads never terminate on their own
+        if (START_SERVERS) {
+            System.exit(0);
+        }
+    }
+
+    /***
+     *  Sends REQUESTS multiply requests of the given size and deadline from CONCURRENCY threads
+     * @param size
+     * @param deadline : deadline in nanoseconds
+     * @return
+     * @throws InterruptedException
+     */
+    Result run(int size, long deadline) throws InterruptedException {
+        HttpEntity<MultiValueMap<String, Object>> request = createRequest(size, deadline);
+        Result result = new Result(size, deadline);
+
+        log.info("Running {} requests of size {} with deadline {}ns", REQUESTS, size, deadline);
+
+        for (int i = 0; i < WARMUP_REQUESTS; i++) {
+            send(request, null);
+        }
+
+        // runs are sequential, so the counters recorded in between belong to this run (unless others use the service)
+        ServiceMetrics before = scrapeServiceMetrics();
+
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENCY);
+        for (int i = 0; i < REQUESTS; i++) {
+            executor.submit(() -> send(request, result));
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.HOURS);
+
+        ServiceMetrics after = scrapeServiceMetrics();
+        if (before != null && after != null) {
+            result.service = after.since(before);
+        }
+        return result;
+    }
+
+    private ServiceMetrics scrapeServiceMetrics() {
+        try {
+            return ServiceMetrics.scrape(restTemplate, METRICS_URL);
+        } catch (RestClientException e) {
+            log.warn("Could not scrape service metrics from {}: {}", METRICS_URL, e.getMessage());
+            return null;
+        }
+    }
+
+    private void send(HttpEntity<MultiValueMap<String, Object>> request, Result result) {
+        long startTime = System.nanoTime();
+        try {
+            ResponseEntity<String> response = restTemplate.postForEntity(URL, request, String.class);
+            long latency = System.nanoTime() - startTime;
+
+            // the service answers 200 with the error message when the calculation fails
+            String body = response.getBody();
+            if (result == null) {
+                return;
+            }
+            if (body == null || !body.startsWith("[[")) {
+                result.errors.incrementAndGet();
+                return;
+            }
+            result.record(latency);
+        } catch (HttpStatusCodeException e) {
+            if (result == null) {
+                return;
+            }
+            if (e.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS || e.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE) {
+                result.rejected.incrementAndGet();
+            } else {
+                result.errors.incrementAndGet();
+            }
+        } catch (RestClientException e) {
+            log.warn("Request failed: {}", e.getMessage());
+            if (result != null) {
+                result.errors.incrementAndGet();
+            }
+        }
+    }
+
+    private static HttpEntity<MultiValueMap<String, Object>> createRequest(int size, long deadline) {
+        byte[] matrix = MatrixFixtures.generateMatrixString(size).getBytes(StandardCharsets.UTF_8);
+
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("matrixFile1", matrixFile(matrix, "matrixFile_" + size + "_1.txt"));
+        body.add("matrixFile2", matrixFile(matrix, "matrixFile_" + size + "_2.txt"));
+        body.add("deadline", String.valueOf(deadline));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        return new HttpEntity<>(body, headers);
+    }
+
+    private static ByteArrayResource matrixFile(byte[] matrix, String filename) {
+        // multipart parts are only sent as files when the resource has a filename
+        return new ByteArrayResource(matrix) {
+            @Override
+            public String getFilename() {
+                return filename;
+            }
+        };
+    }
+
+    private static void printReport(List<Result> results) {
+        StringBuilder sb = new StringBuilder();
+        // "http" counts the whole request against the deadline, "service" only the block calculation, as scaled by the service
+        sb.append(String.format("%n%6s %12s %6s %6s %8s %8s %10s %10s %10s %10s %8s %8s %8s %8s  %s%n",
+                "size", "deadline ms", "ok", "errors", "rejected", "http met", "p50 ms", "p90 ms", "p99 ms", "max ms", "met %",
+                "svc met", "missed", "servers", "met/missed per server count"));
+        for (Result result : results) {
+            Histogram histogram = result.histogram;
+            long ok = histogram.getTotalCount();
+            ServiceMetrics service = result.service;
+            sb.append(String.format("%6d %12.1f %6d %6d %8d %8d %10.1f %10.1f %10.1f %10.1f %8.1f %8s %8s %8s  %s%n",
+                    result.size,
+                    result.deadline / 1e6,
+                    ok,
+                    result.errors.get(),
+                    result.rejected.get(),
+                    result.met.get(),
+                    histogram.getValueAtPercentile(50) / 1e6,
+                    histogram.getValueAtPercentile(90) / 1e6,
+                    histogram.getValueAtPercentile(99) / 1e6,
+                    histogram.getMaxValue() / 1e6,
+                    REQUESTS == 0 ? 0.0 : 100.0 * result.met.get() / REQUESTS,
+                    service == null ? "-" : String.valueOf(service.met()),
+                    service == null ? "-" : String.valueOf(service.missed()),
+                    service == null ? "-" : String.format("%.1f", service.averageServersChosen()),
+                    service == null ? "-" : service.outcomesPerServerCount()));
+        }
+        // printed directly so the report isn't dropped or interleaved by the async log appender
+        System.out.print(sb);
+        System.out.flush();
+    }
+
+    private static int[] parseInts(String values) {
+        String[] parts = values.split(",");
+        int[] out = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            out[i] = Integer.parseInt(parts[i].trim());
+        }
+        return out;
+    }
+
+    private static long[] parseLongs(String values) {
+        String[] parts = values.split(",");
+        long[] out = new long[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            out[i] = Long.parseLong(parts[i].trim());
+        }
+        return out;
+    }
+
+    /**
+     * Latencies (ns) of the successful requests of one size and deadline combination
+     */
+    static class Result {
+        private final int size;
+        private final long deadline;
+        // up to 1 hour at 3 significant digits
+        private final Histogram histogram = new ConcurrentHistogram(TimeUnit.HOURS.toNanos(1), 3);
+        private final AtomicInteger met = new AtomicInteger();
+        private final AtomicInteger errors = new AtomicInteger();
+        private final AtomicInteger rejected = new AtomicInteger();
+        // deadline outcomes recorded by the service during the run, null if they could not be scraped
+        private ServiceMetrics service;
+
+        Result(int size, long deadline) {
+            this.size = size;
+            this.deadline = deadline;
+        }
+
+        void record(long latency) {
+            histogram.recordValue(Math.min(latency, histogram.getHighestTrackableValue()));
+            if (latency <= deadline) {
+                met.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.ds.loadtest;
+
+/**
+ * Generated input matrices for the load generator, not part of the service
+ */
+public final class MatrixFixtures {
+
+    private MatrixFixtures() {
+    }
+
+    /***
+     *  Generates an n x n matrix string in the input file format, repeating the values of matrixFile1.txt
+     * @param n
+     * @return
+     */
+    public static String generateMatrixString(int n) {
+        StringBuilder sb = new StringBuilder(n * n * 2);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (j > 0) {
+                    sb.append(' ');
+                }
+                sb.append(((i % 4) * 4 + (j % 4)) % 9 + 1);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
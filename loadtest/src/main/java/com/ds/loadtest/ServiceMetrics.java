@@ -0,0 +1,120 @@
+package com.ds.loadtest;
+
+import com.ds.common.metrics.MatrixMetrics;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Deadline scaling counters of the REST service, read from its Prometheus scrape endpoint.
+ * The service counts a deadline as met when the block calculation (not the whole HTTP request) finished in time.
+ */
+class ServiceMetrics {
+
+    // prometheus names of MatrixMetrics.DEADLINE and MatrixMetrics.SERVER_COUNT
+    private static final String DEADLINE_TOTAL = prometheusName(MatrixMetrics.DEADLINE) + "_total";
+    private static final String SERVERS_CHOSEN_SUM = prometheusName(MatrixMetrics.SERVER_COUNT) + "_sum";
+    private static final String SERVERS_CHOSEN_COUNT = prometheusName(MatrixMetrics.SERVER_COUNT) + "_count";
+
+    private static final Pattern LABEL = Pattern.compile("(\\w+)=\"([^\"]*)\"");
+
+    // server count -> {met, missed}
+    private final Map<Integer, long[]> deadlineOutcomes = new TreeMap<>();
+    private double serversChosenSum;
+    private long serversChosenCount;
+
+    /***
+     *  Scrapes the current counter values
+     * @param restTemplate
+     * @param url : e.g. http://localhost:8080/actuator/prometheus
+     * @return
+     */
+    static ServiceMetrics scrape(RestTemplate restTemplate, String url) {
+        ServiceMetrics metrics = new ServiceMetrics();
+        String body = restTemplate.getForObject(url, String.class);
+        if (body == null) {
+            return metrics;
+        }
+
+        for (String line : body.split("\n")) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int valueStart = line.lastIndexOf(' ');
+            int labelStart = line.indexOf('{');
+            String name = labelStart < 0 ? line.substring(0, valueStart) : line.substring(0, labelStart);
+            double value = Double.parseDouble(line.substring(valueStart + 1));
+
+            if (name.equals(DEADLINE_TOTAL)) {
+                Map<String, String> labels = labels(line.substring(labelStart, valueStart));
+                long[] outcomes = metrics.deadlineOutcomes.computeIfAbsent(Integer.parseInt(labels.get("servers")), servers -> new long[2]);
+                outcomes["met".equals(labels.get("outcome")) ? 0 : 1] += (long) value;
+            } else if (name.equals(SERVERS_CHOSEN_SUM)) {
+                metrics.serversChosenSum += value;
+            } else if (name.equals(SERVERS_CHOSEN_COUNT)) {
+                metrics.serversChosenCount += (long) value;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * @return the counts recorded since the given earlier scrape
+     */
+    ServiceMetrics since(ServiceMetrics before) {
+        ServiceMetrics delta = new ServiceMetrics();
+        for (Map.Entry<Integer, long[]> entry : deadlineOutcomes.entrySet()) {
+            long[] earlier = before.deadlineOutcomes.getOrDefault(entry.getKey(), new long[2]);
+            long met = entry.getValue()[0] - earlier[0];
+            long missed = entry.getValue()[1] - earlier[1];
+            if (met > 0 || missed > 0) {
+                delta.deadlineOutcomes.put(entry.getKey(), new long[]{met, missed});
+            }
+        }
+        delta.serversChosenSum = serversChosenSum - before.serversChosenSum;
+        delta.serversChosenCount = serversChosenCount - before.serversChosenCount;
+        return delta;
+    }
+
+    long met() {
+        return deadlineOutcomes.values().stream().mapToLong(outcomes -> outcomes[0]).sum();
+    }
+
+    long missed() {
+        return deadlineOutcomes.values().stream().mapToLong(outcomes -> outcomes[1]).sum();
+    }
+
+    double averageServersChosen() {
+        return serversChosenCount == 0 ? 0.0 : serversChosenSum / serversChosenCount;
+    }
+
+    /**
+     * @return met/missed per server count, e.g. "2:40/3 4:5/0"
+     */
+    String outcomesPerServerCount() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Integer, long[]> entry : deadlineOutcomes.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(entry.getKey()).append(':').append(entry.getValue()[0]).append('/').append(entry.getValue()[1]);
+        }
+        return sb.length() == 0 ? "-" : sb.toString();
+    }
+
+    private static Map<String, String> labels(String labels) {
+        Map<String, String> out = new TreeMap<>();
+        Matcher matcher = LABEL.matcher(labels);
+        while (matcher.find()) {
+            out.put(matcher.group(1), matcher.group(2));
+        }
+        return out;
+    }
+
+    private static String prometheusName(String meterName) {
+        return meterName.replace('.', '_');
+    }
+}